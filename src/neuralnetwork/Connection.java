@@ -1,6 +1,7 @@
 package neuralnetwork;
 
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
  * Class for the connections between Neurons in a neural network. Holds
@@ -12,8 +13,6 @@ import java.util.Random;
  */
 public class Connection {
 
-	Random r = new Random();
-
 	/*
 	 * Properties of the connection.
 	 */
@@ -47,7 +46,8 @@ public class Connection {
 
 	/**
 	 * Constructor without a given weight. Weight is initialised to a positive or
-	 * negative small value.
+	 * negative small value. Networks built by NeuronApp draw their weights from a
+	 * seeded WeightInitializer instead.
 	 * 
 	 * @param i      Source neuron.
 	 * @param j      Target neuron.
@@ -58,7 +58,7 @@ public class Connection {
 		this.toNeuron = j;
 		this.weight = 0;
 		while (this.weight == 0) {
-			this.weight = ((r.nextDouble() * 2) - 1) * .3;
+			this.weight = ThreadLocalRandom.current().nextDouble(-.3, .3);
 		}
 		this.weightChange = new double[length];
 	}
@@ -139,4 +139,13 @@ public class Connection {
 		setWeight(this.weight + this.epochChange);
 		this.epochChange = 0;
 	}
+
+	/**
+	 * Clears the stored weight changes, so that no momentum is carried into the
+	 * next epoch.
+	 */
+	public void clearChanges() {
+		Arrays.fill(this.weightChange, 0);
+		this.epochChange = 0;
+	}
 }
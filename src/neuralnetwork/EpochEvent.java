@@ -0,0 +1,30 @@
+package neuralnetwork;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning one epoch of learning, from its first pattern to the end
+ * of its weight update.
+ * 
+ * @author Nick
+ *
+ */
+@Name("neuralnetwork.Epoch")
+@Label("Epoch")
+@Category("Neural Network")
+@Description("One epoch of learning over every teaching pattern")
+public class EpochEvent extends jdk.jfr.Event {
+
+	@Label("Epoch")
+	public int epoch;
+
+	@Label("Patterns")
+	public int patterns;
+
+	@Label("Compiled")
+	@Description("Whether the epoch ran in a generated kernel")
+	public boolean compiled;
+}
@@ -0,0 +1,246 @@
+package neuralnetwork;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class Kernel. Base for the network code generated by KernelCompiler for a
+ * fixed topology. Instead of walking Neuron and Connection objects, a kernel
+ * holds every weight in one flat array and runs the same forward and backward
+ * passes over it, with the layer sizes baked into the generated subclass.
+ *
+ * Weights are laid out by target neuron, in the order of each Neuron's input
+ * Connections: hidden neuron h's input weights then its bias weight, followed
+ * by output neuron o's hidden weights then its bias weight.
+ *
+ * @author Nick
+ *
+ */
+public abstract class Kernel {
+
+	/*
+	 * Flat weight array, and weight changes. lastChange holds the most recent
+	 * weight change of every weight for every pattern, at [pattern * weights +
+	 * weight]. epochChange stores all weight changes for offline weight change.
+	 */
+	public final double[] weights;
+	public final double[] lastChange;
+	public final double[] epochChange;
+
+	/*
+	 * Neuron outputs and error terms for the current pattern.
+	 */
+	public final double[] hiddenOutput;
+	public final double[] outputOutput;
+	public final double[] hiddenError;
+	public final double[] outputError;
+
+	/*
+	 * Input patterns, teaching inputs and network outputs, shared with NeuronApp.
+	 */
+	public final double[][] inputArray;
+	public final double[][] teacherArray;
+	public final double[][] outputArray;
+
+	/*
+	 * Network learning and momentum constants.
+	 */
+	public double learn;
+	public double momentum;
+
+	/**
+	 * Constructor called by generated kernels with their layer sizes. KernelCompiler
+	 * keeps weights times patterns within its budget before getting here.
+	 *
+	 * @param inputArray   Array of input patterns.
+	 * @param teacherArray Array of teaching inputs.
+	 * @param outputArray  Array to place outputs into.
+	 * @param weights      Number of weights, including bias weights.
+	 * @param hidden       Number of hidden neurons.
+	 * @param output       Number of output neurons.
+	 */
+	protected Kernel(double[][] inputArray, double[][] teacherArray, double[][] outputArray, int weights, int hidden,
+			int output) {
+		this.inputArray = inputArray;
+		this.teacherArray = teacherArray;
+		this.outputArray = outputArray;
+		long changes = (long) weights * inputArray[0].length;
+		if (changes > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Too many weight changes for one array: " + changes);
+		}
+		this.weights = new double[weights];
+		this.lastChange = new double[(int) changes];
+		this.epochChange = new double[weights];
+		this.hiddenOutput = new double[hidden];
+		this.outputOutput = new double[output];
+		this.hiddenError = new double[hidden];
+		this.outputError = new double[output];
+	}
+
+	/**
+	 * Calculates the outputs of the hidden neurons for a pattern.
+	 *
+	 * @param j Pattern number.
+	 */
+	public abstract void forwardHidden(int j);
+
+	/**
+	 * Calculates the outputs of the output neurons for a pattern, and places them
+	 * in the output array.
+	 *
+	 * @param j Pattern number.
+	 */
+	public abstract void forwardOutput(int j);
+
+	/**
+	 * Calculates the output error terms for a pattern, and collates the weight
+	 * changes of the connections into the output neurons.
+	 *
+	 * @param j Pattern number.
+	 */
+	public abstract void backwardOutput(int j);
+
+	/**
+	 * Calculates the hidden error terms for a pattern, and collates the weight
+	 * changes of the connections into the hidden neurons. Output error terms must
+	 * already be calculated.
+	 *
+	 * @param j Pattern number.
+	 */
+	public abstract void backwardHidden(int j);
+
+	/**
+	 * Makes all of the collated weight changes at the end of an epoch.
+	 */
+	public abstract void updateWeights();
+
+	/**
+	 * Runs one epoch of learning over every teaching pattern.
+	 *
+	 * @param telemetry Telemetry to time the phases and weight update with.
+	 * @param epoch     Number of the epoch.
+	 */
+	public void learnEpoch(Telemetry telemetry, int epoch) {
+		for (int j = 0; j < inputArray[0].length; j++) {
+			telemetry.mark();
+			forwardHidden(j);
+			telemetry.phase(Telemetry.FORWARD_HIDDEN);
+			forwardOutput(j);
+			telemetry.phase(Telemetry.FORWARD_OUTPUT);
+			backwardOutput(j);
+			telemetry.phase(Telemetry.BACKWARD_OUTPUT);
+			backwardHidden(j);
+			telemetry.phase(Telemetry.BACKWARD_HIDDEN);
+		}
+		telemetry.beginUpdate(epoch);
+		updateWeights();
+		telemetry.endUpdate();
+	}
+
+	/**
+	 * Propagates a single pattern forward through the network.
+	 *
+	 * @param j Pattern number.
+	 */
+	public void testPattern(int j) {
+		forwardHidden(j);
+		forwardOutput(j);
+	}
+
+	/**
+	 * Copies the weights and weight changes of the network's Connections into the
+	 * kernel.
+	 *
+	 * @param hiddenLayer Hidden NeuronLayer.
+	 * @param outputLayer Output NeuronLayer.
+	 */
+	public void load(NeuronLayer hiddenLayer, NeuronLayer outputLayer) {
+		int k = load(hiddenLayer, 0);
+		load(outputLayer, k);
+	}
+
+	/**
+	 * Copies the weights and weight changes of one layer's input Connections into
+	 * the kernel.
+	 *
+	 * @param layer Layer to copy from.
+	 * @param k     Index of the layer's first weight.
+	 * @return Index after the layer's last weight.
+	 */
+	private int load(NeuronLayer layer, int k) {
+		for (int n = 0; n < layer.neurons.size(); n++) {
+			List<Connection> connections = layer.neurons.get(n).inputConnections;
+			for (int i = 0; i < connections.size(); i++, k++) {
+				Connection c = connections.get(i);
+				weights[k] = c.weight;
+				epochChange[k] = c.epochChange;
+				for (int j = 0; j < c.weightChange.length; j++) {
+					lastChange[j * weights.length + k] = c.weightChange[j];
+				}
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * Copies the kernel's weights and weight changes back into the network's
+	 * Connections.
+	 *
+	 * @param hiddenLayer Hidden NeuronLayer.
+	 * @param outputLayer Output NeuronLayer.
+	 */
+	public void store(NeuronLayer hiddenLayer, NeuronLayer outputLayer) {
+		int k = store(hiddenLayer, 0);
+		store(outputLayer, k);
+	}
+
+	/**
+	 * Copies the kernel's weights and weight changes back into one layer's input
+	 * Connections.
+	 *
+	 * @param layer Layer to copy into.
+	 * @param k     Index of the layer's first weight.
+	 * @return Index after the layer's last weight.
+	 */
+	private int store(NeuronLayer layer, int k) {
+		for (int n = 0; n < layer.neurons.size(); n++) {
+			List<Connection> connections = layer.neurons.get(n).inputConnections;
+			for (int i = 0; i < connections.size(); i++, k++) {
+				Connection c = connections.get(i);
+				c.weight = weights[k];
+				c.epochChange = epochChange[k];
+				for (int j = 0; j < c.weightChange.length; j++) {
+					c.weightChange[j] = lastChange[j * weights.length + k];
+				}
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * Clears the stored weight changes, so that no momentum is carried into the
+	 * next epoch.
+	 */
+	public void clearChanges() {
+		Arrays.fill(lastChange, 0);
+		Arrays.fill(epochChange, 0);
+	}
+
+	/**
+	 * Sets the outputs and error terms of the network's Neurons to those
+	 * calculated by the kernel for the last pattern.
+	 *
+	 * @param hiddenLayer Hidden NeuronLayer.
+	 * @param outputLayer Output NeuronLayer.
+	 */
+	public void storeOutputs(NeuronLayer hiddenLayer, NeuronLayer outputLayer) {
+		for (int h = 0; h < hiddenOutput.length; h++) {
+			hiddenLayer.neurons.get(h).output = hiddenOutput[h];
+			hiddenLayer.neurons.get(h).errorTerm = hiddenError[h];
+		}
+		for (int o = 0; o < outputOutput.length; o++) {
+			outputLayer.neurons.get(o).output = outputOutput[o];
+			outputLayer.neurons.get(o).errorTerm = outputError[o];
+		}
+	}
+}
@@ -0,0 +1,357 @@
+package neuralnetwork;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.lang.invoke.MethodHandles;
+import java.net.URI;
+import java.util.List;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+/**
+ * Class KernelCompiler. Once the network topology is fixed, generates the source
+ * of a Kernel subclass with the layer sizes baked in as constants, compiles it
+ * in memory, and defines it as a hidden class. Small networks get fully
+ * unrolled code; larger ones get loops with constant bounds. Very large layers,
+ * networks whose weight changes would not fit the memory budget, or a runtime
+ * without a Java compiler, are left to the interpreted network.
+ *
+ * @author Nick
+ *
+ */
+public class KernelCompiler {
+
+	/*
+	 * Largest number of weights for which the passes are fully unrolled, the
+	 * largest layer for which a kernel is generated at all, and the largest
+	 * number of weight changes (weights times patterns) a kernel may hold. The
+	 * kernel keeps its own copy of every Connection's weight changes, so the
+	 * last limit bounds the extra memory the kernel costs.
+	 */
+	static final int UNROLL_LIMIT = 256;
+	static final int LAYER_LIMIT = 4096;
+	static final long CHANGE_LIMIT = 1L << 24;
+
+	/*
+	 * Binary name of the generated class. As a hidden class it is never
+	 * registered under this name, so every network can use it.
+	 */
+	static final String CLASS_NAME = "neuralnetwork.CompiledKernel";
+
+	/*
+	 * Layer sizes, and the number and layout of the weights.
+	 */
+	private final int input;
+	private final int hidden;
+	private final int output;
+	private final int outputBase;
+	private final int weights;
+	private final boolean unroll;
+
+	/**
+	 * Constructor for a given topology.
+	 *
+	 * @param input  Number of input neurons.
+	 * @param hidden Number of hidden neurons.
+	 * @param output Number of output neurons.
+	 */
+	public KernelCompiler(int input, int hidden, int output) {
+		this.input = input;
+		this.hidden = hidden;
+		this.output = output;
+		this.outputBase = hidden * (input + 1);
+		this.weights = outputBase + output * (hidden + 1);
+		this.unroll = weights <= UNROLL_LIMIT;
+	}
+
+	/**
+	 * Generates and compiles a kernel for the network, and loads the network's
+	 * current weights into it.
+	 *
+	 * @param net NeuronApp with a built network.
+	 * @return Compiled kernel, or null if the network should stay interpreted.
+	 */
+	public static Kernel compile(NeuronApp net) {
+		if (Math.max(net.input, Math.max(net.hidden, net.output)) > LAYER_LIMIT) {
+			System.out.println("Layers larger than " + LAYER_LIMIT + " neurons are not compiled.");
+			return null;
+		}
+		long weights = (long) net.hidden * (net.input + 1) + (long) net.output * (net.hidden + 1);
+		if (weights * net.inputArray[0].length > CHANGE_LIMIT) {
+			System.out.println("Networks with more than " + CHANGE_LIMIT + " weight changes are not compiled.");
+			return null;
+		}
+		KernelCompiler compiler = new KernelCompiler(net.input, net.hidden, net.output);
+		try {
+			Kernel kernel = compiler.define(net.inputArray, net.teacherArray, net.outputArray);
+			if (kernel != null) {
+				kernel.learn = net.learn;
+				kernel.momentum = net.momentum;
+				kernel.load(net.hiddenLayer, net.outputLayer);
+			}
+			return kernel;
+		} catch (Exception | LinkageError e) {
+			System.err.println("Kernel compilation failed: " + e);
+			return null;
+		}
+	}
+
+	/**
+	 * Compiles the generated source and defines it as a hidden class in this
+	 * package.
+	 *
+	 * @param inputArray   Array of input patterns.
+	 * @param teacherArray Array of teaching inputs.
+	 * @param outputArray  Array to place outputs into.
+	 * @return New kernel instance, or null if no compiler is available.
+	 * @throws Exception If the class cannot be compiled, defined or constructed.
+	 */
+	Kernel define(double[][] inputArray, double[][] teacherArray, double[][] outputArray) throws Exception {
+		JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+		if (javac == null) {
+			return null;
+		}
+		String simpleName = CLASS_NAME.substring(CLASS_NAME.lastIndexOf('.') + 1);
+		JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///" + simpleName + ".java"),
+				JavaFileObject.Kind.SOURCE) {
+			@Override
+			public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+				return generate();
+			}
+		};
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		StringWriter log = new StringWriter();
+		List<String> options = List.of("-classpath", System.getProperty("java.class.path"), "-g:none");
+		try (JavaFileManager files = new ForwardingJavaFileManager<JavaFileManager>(
+				javac.getStandardFileManager(null, null, null)) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+					FileObject sibling) {
+				return new SimpleJavaFileObject(URI.create("bytes:///" + className + ".class"), kind) {
+					@Override
+					public OutputStream openOutputStream() {
+						return bytes;
+					}
+				};
+			}
+		}) {
+			if (!javac.getTask(log, files, null, options, null, List.of(source)).call()) {
+				throw new IllegalStateException(log.toString());
+			}
+		}
+		MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes.toByteArray(), true);
+		return instantiate(lookup.lookupClass(), inputArray, teacherArray, outputArray);
+	}
+
+	/**
+	 * Creates an instance of a generated kernel class for a set of patterns. Used
+	 * to run the same kernel over other patterns, such as validation patterns.
+	 *
+	 * @param kernelClass  Generated kernel class.
+	 * @param inputArray   Array of input patterns.
+	 * @param teacherArray Array of teaching inputs.
+	 * @param outputArray  Array to place outputs into.
+	 * @return New kernel instance.
+	 * @throws ReflectiveOperationException If the class cannot be constructed.
+	 */
+	static Kernel instantiate(Class<?> kernelClass, double[][] inputArray, double[][] teacherArray,
+			double[][] outputArray) throws ReflectiveOperationException {
+		return (Kernel) kernelClass.getDeclaredConstructor(double[][].class, double[][].class, double[][].class)
+				.newInstance(inputArray, teacherArray, outputArray);
+	}
+
+	/**
+	 * Generates the source of the kernel class.
+	 *
+	 * @return Java source of a Kernel subclass for this topology.
+	 */
+	public String generate() {
+		String simpleName = CLASS_NAME.substring(CLASS_NAME.lastIndexOf('.') + 1);
+		StringBuilder sb = new StringBuilder();
+		sb.append("package neuralnetwork;\n\n");
+		sb.append("final class ").append(simpleName).append(" extends Kernel {\n");
+		sb.append("static final int I = ").append(input).append(", H = ").append(hidden).append(", O = ")
+				.append(output).append(", HO = ").append(outputBase).append(", W = ").append(weights).append(";\n");
+		sb.append(simpleName).append("(double[][] in, double[][] teach, double[][] out) {\n");
+		sb.append("super(in, teach, out, W, H, O);\n}\n");
+		forwardHidden(sb);
+		forwardOutput(sb);
+		backwardOutput(sb);
+		backwardHidden(sb);
+		updateWeights(sb);
+		sb.append("}\n");
+		return sb.toString();
+	}
+
+	/**
+	 * Generates forwardHidden: weighted sum of inputs and bias, then sigmoid.
+	 *
+	 * @param sb Source being generated.
+	 */
+	private void forwardHidden(StringBuilder sb) {
+		sb.append("public void forwardHidden(int j) {\n");
+		sb.append("final double[][] x = inputArray; final double[] w = weights, y = hiddenOutput;\n");
+		if (unroll) {
+			for (int h = 0, k = 0; h < hidden; h++, k++) {
+				sb.append("{ double s = 0;\n");
+				for (int i = 0; i < input; i++, k++) {
+					sb.append("s += x[").append(i).append("][j] * w[").append(k).append("];\n");
+				}
+				sb.append("s += w[").append(k).append("];\n");
+				sb.append("y[").append(h).append("] = 1 / (1 + Math.pow(Math.E, -s)); }\n");
+			}
+		} else {
+			sb.append("for (int h = 0, k = 0; h < H; h++, k++) {\ndouble s = 0;\n");
+			sb.append("for (int i = 0; i < I; i++, k++) { s += x[i][j] * w[k]; }\n");
+			sb.append("s += w[k];\ny[h] = 1 / (1 + Math.pow(Math.E, -s));\n}\n");
+		}
+		sb.append("}\n");
+	}
+
+	/**
+	 * Generates forwardOutput: weighted sum of hidden outputs and bias, then
+	 * sigmoid, placed in the output array.
+	 *
+	 * @param sb Source being generated.
+	 */
+	private void forwardOutput(StringBuilder sb) {
+		sb.append("public void forwardOutput(int j) {\n");
+		sb.append("final double[][] out = outputArray; final double[] w = weights, y = hiddenOutput, z = outputOutput;\n");
+		if (unroll) {
+			for (int o = 0, k = outputBase; o < output; o++, k++) {
+				sb.append("{ double s = 0;\n");
+				for (int h = 0; h < hidden; h++, k++) {
+					sb.append("s += y[").append(h).append("] * w[").append(k).append("];\n");
+				}
+				sb.append("s += w[").append(k).append("];\n");
+				sb.append("double v = 1 / (1 + Math.pow(Math.E, -s));\n");
+				sb.append("z[").append(o).append("] = v; out[").append(o).append("][j] = v; }\n");
+			}
+		} else {
+			sb.append("for (int o = 0, k = HO; o < O; o++, k++) {\ndouble s = 0;\n");
+			sb.append("for (int h = 0; h < H; h++, k++) { s += y[h] * w[k]; }\n");
+			sb.append("s += w[k];\ndouble v = 1 / (1 + Math.pow(Math.E, -s));\nz[o] = v; out[o][j] = v;\n}\n");
+		}
+		sb.append("}\n");
+	}
+
+	/**
+	 * Generates backwardOutput: output error terms against the teaching input,
+	 * and weight changes of the hidden and bias connections into each output.
+	 *
+	 * @param sb Source being generated.
+	 */
+	private void backwardOutput(StringBuilder sb) {
+		sb.append("public void backwardOutput(int j) {\n");
+		sb.append("final double[][] t = teacherArray;\n");
+		sb.append("final double[] y = hiddenOutput, z = outputOutput, e = outputError, last = lastChange, ep = epochChange;\n");
+		sb.append("final double m = momentum; final int p = j * W;\n");
+		if (unroll) {
+			for (int o = 0, k = outputBase; o < output; o++, k++) {
+				sb.append("{ double v = z[").append(o).append("];\n");
+				sb.append("double eo = (t[").append(o).append("][j] - v) * v * (1 - v);\n");
+				sb.append("e[").append(o).append("] = eo; double le = learn * eo; double c;\n");
+				for (int h = 0; h < hidden; h++, k++) {
+					change(sb, k, "le * y[" + h + "]");
+				}
+				change(sb, k, "le");
+				sb.append("}\n");
+			}
+		} else {
+			sb.append("for (int o = 0, k = HO; o < O; o++, k++) {\n");
+			sb.append("double v = z[o];\ndouble eo = (t[o][j] - v) * v * (1 - v);\n");
+			sb.append("e[o] = eo; double le = learn * eo; double c;\n");
+			sb.append("for (int h = 0; h < H; h++, k++) {\n");
+			change(sb, "k", "le * y[h]");
+			sb.append("}\n");
+			change(sb, "k", "le");
+			sb.append("}\n");
+		}
+		sb.append("}\n");
+	}
+
+	/**
+	 * Generates backwardHidden: hidden error terms from the output error terms,
+	 * and weight changes of the input and bias connections into each hidden
+	 * neuron.
+	 *
+	 * @param sb Source being generated.
+	 */
+	private void backwardHidden(StringBuilder sb) {
+		sb.append("public void backwardHidden(int j) {\n");
+		sb.append("final double[][] x = inputArray;\n");
+		sb.append("final double[] w = weights, y = hiddenOutput, e = outputError, f = hiddenError, last = lastChange, ep = epochChange;\n");
+		sb.append("final double m = momentum; final int p = j * W;\n");
+		if (unroll) {
+			for (int h = 0, k = 0; h < hidden; h++, k++) {
+				sb.append("{ double s = 0;\n");
+				for (int o = 0; o < output; o++) {
+					sb.append("s += e[").append(o).append("] * w[").append(outputBase + o * (hidden + 1) + h)
+							.append("];\n");
+				}
+				sb.append("double v = y[").append(h).append("];\n");
+				sb.append("double eh = v * (1 - v) * s;\n");
+				sb.append("f[").append(h).append("] = eh; double le = learn * eh; double c;\n");
+				for (int i = 0; i < input; i++, k++) {
+					change(sb, k, "le * x[" + i + "][j]");
+				}
+				change(sb, k, "le");
+				sb.append("}\n");
+			}
+		} else {
+			sb.append("for (int h = 0, k = 0; h < H; h++, k++) {\ndouble s = 0;\n");
+			sb.append("for (int o = 0; o < O; o++) { s += e[o] * w[HO + o * (H + 1) + h]; }\n");
+			sb.append("double v = y[h];\ndouble eh = v * (1 - v) * s;\n");
+			sb.append("f[h] = eh; double le = learn * eh; double c;\n");
+			sb.append("for (int i = 0; i < I; i++, k++) {\n");
+			change(sb, "k", "le * x[i][j]");
+			sb.append("}\n");
+			change(sb, "k", "le");
+			sb.append("}\n");
+		}
+		sb.append("}\n");
+	}
+
+	/**
+	 * Generates updateWeights: adds each collated change to its weight.
+	 *
+	 * @param sb Source being generated.
+	 */
+	private void updateWeights(StringBuilder sb) {
+		sb.append("public void updateWeights() {\n");
+		sb.append("final double[] w = weights, ep = epochChange;\n");
+		sb.append("for (int k = 0; k < W; k++) { w[k] = w[k] + ep[k]; ep[k] = 0; }\n");
+		sb.append("}\n");
+	}
+
+	/**
+	 * Generates the weight change of one connection at a constant index.
+	 *
+	 * @param sb    Source being generated.
+	 * @param k     Weight index.
+	 * @param delta Expression for the learning constant times error times input.
+	 */
+	private static void change(StringBuilder sb, int k, String delta) {
+		change(sb, Integer.toString(k), delta);
+	}
+
+	/**
+	 * Generates the weight change of one connection, as in
+	 * Connection.changeWeight.
+	 *
+	 * @param sb    Source being generated.
+	 * @param k     Expression for the weight index.
+	 * @param delta Expression for the learning constant times error times input.
+	 */
+	private static void change(StringBuilder sb, String k, String delta) {
+		sb.append("c = last[p + ").append(k).append("] * m + ").append(delta).append("; last[p + ").append(k)
+				.append("] = c; ep[").append(k).append("] += c;\n");
+	}
+}
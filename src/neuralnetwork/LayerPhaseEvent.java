@@ -0,0 +1,40 @@
+package neuralnetwork;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event with the time one NeuronLayer spent in its forward or backward
+ * phase over an epoch. Phases run once per pattern, so their times are summed
+ * and committed once per epoch rather than as an event per pattern.
+ * 
+ * @author Nick
+ *
+ */
+@Name("neuralnetwork.LayerPhase")
+@Label("Layer Phase")
+@Category("Neural Network")
+@Description("Time spent by a layer in its forward or backward phase over an epoch")
+public class LayerPhaseEvent extends jdk.jfr.Event {
+
+	@Label("Epoch")
+	public int epoch;
+
+	@Label("Layer")
+	@Description("(H)idden or (O)utput")
+	public String layer;
+
+	@Label("Phase")
+	@Description("forward or backward")
+	public String phase;
+
+	@Label("Phase Time")
+	@Timespan(Timespan.NANOSECONDS)
+	public long phaseTime;
+
+	@Label("Patterns")
+	public int patterns;
+}
@@ -56,14 +56,15 @@ public class Neuron {
 
 	/**
 	 * Calculated the total input into the Neuron by summating the weighted inputs
-	 * of all incoming Connections.
+	 * of all incoming Connections. Loops over Connections in this class are
+	 * indexed, as they run for every pattern and should not create iterators.
 	 * 
 	 * @return Weighted sum of all inputs.
 	 */
 	public double propagationRule() {
 		double sumInput = 0;
-		for (Connection c : this.inputConnections) {
-			sumInput += c.getWeightedInput();
+		for (int i = 0; i < this.inputConnections.size(); i++) {
+			sumInput += this.inputConnections.get(i).getWeightedInput();
 		}
 		return sumInput;
 	}
@@ -126,10 +127,35 @@ public class Neuron {
 	 */
 	public double calcError() {
 		double sumError = 0;
-		for (Connection c : outputConnections) {
+		for (int i = 0; i < outputConnections.size(); i++) {
+			Connection c = outputConnections.get(i);
 			sumError += c.toNeuron.errorTerm * c.getWeight();
 		}
 		this.errorTerm = this.output * (1 - this.output) * sumError;
 		return this.errorTerm;
 	}
+
+	/**
+	 * Collates the weight changes of all incoming Connections for the current
+	 * pattern, based on this Neuron's error term.
+	 * 
+	 * @param constant Network learning constant.
+	 * @param momentum Network momentum constant.
+	 * @param pattern  Pattern number.
+	 */
+	public void changeInputWeights(double constant, double momentum, int pattern) {
+		for (int i = 0; i < inputConnections.size(); i++) {
+			inputConnections.get(i).changeWeight(constant, momentum, pattern);
+		}
+	}
+
+	/**
+	 * Makes the collated weight changes of all incoming Connections at the end of
+	 * an epoch.
+	 */
+	public void updateInputWeights() {
+		for (int i = 0; i < inputConnections.size(); i++) {
+			inputConnections.get(i).updateWeight();
+		}
+	}
 }
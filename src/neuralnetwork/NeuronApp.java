@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.text.DecimalFormat;
 import java.util.Scanner;
+import java.util.SplittableRandom;
 
 /**
  * Application file for neural network.
@@ -29,6 +30,63 @@ public class NeuronApp {
 
 	int epochs;
 
+	/*
+	 * Weight initialisation settings. Optional in param.txt; the seed defaults to
+	 * the current time and is printed so that a run can be reproduced.
+	 */
+	long seed = System.nanoTime();
+	WeightInitializer.Scheme scheme = WeightInitializer.Scheme.UNIFORM;
+	WeightInitializer initializer;
+
+	/*
+	 * Network structure, built once the text files have been read.
+	 */
+	NeuronLayer inputLayer;
+	NeuronLayer hiddenLayer;
+	NeuronLayer outputLayer;
+	Neuron bias;
+
+	/*
+	 * Generated code for the built network, used in place of the Neuron and
+	 * Connection objects when learning and testing. Null if the network is
+	 * interpreted, either because "compile off" is given in param.txt or because
+	 * no kernel could be generated.
+	 */
+	boolean compile = true;
+	Kernel kernel;
+
+	/*
+	 * Validation settings and patterns. Validation patterns are either read from
+	 * separate files or held out from the teaching patterns. Every validateEvery
+	 * epochs a snapshot of the weights is checked in the background; after
+	 * patience checks without improvement, learning stops and the best weights
+	 * are restored. Null validator if no validation patterns are given.
+	 */
+	double validateFraction;
+	String validateInFile;
+	String validateTeachFile;
+	int validateEvery = 100;
+	int patience;
+	double[][] validateInputArray;
+	double[][] validateTeacherArray;
+	Validator validator;
+
+	/*
+	 * Results of the validation checks, as seen by the learning thread at each
+	 * scheduled epoch.
+	 */
+	double validatedError = Double.NaN;
+	int validatedEpoch;
+	boolean stoppedEarly;
+
+	/*
+	 * JFR events and JMX statistics. Events are recorded whenever a flight
+	 * recording enables them; the statistics MBean is only registered if "jmx on"
+	 * is given in param.txt.
+	 */
+	boolean jmx;
+	Telemetry telemetry = new Telemetry();
+
 	/**
 	 * Returns a message outlining commands and current state.
 	 *
@@ -57,36 +115,16 @@ public class NeuronApp {
 		net.readInput();
 		System.out.println();
 		net.readTeacher();
+		net.readValidation();
+		net.buildNetwork();
+		net.compileNetwork();
+		net.startValidation();
+		net.startStats();
 
-		// build input layer
-		NeuronLayer inputLayer = new NeuronLayer();
-		for (int i = 0; i < net.input; i++) {
-			Neuron n = new Neuron("I");
-			inputLayer.addNeuron(n);
-		}
-
-		// build hidden layer
-		NeuronLayer hiddenLayer = new NeuronLayer();
-		for (int i = 0; i < net.hidden; i++) {
-			Neuron n = new Neuron("H");
-			hiddenLayer.addNeuron(n);
-		}
-
-		// build output layer
-		NeuronLayer outputLayer = new NeuronLayer();
-		for (int i = 0; i < net.output; i++) {
-			Neuron n = new Neuron("O");
-			outputLayer.addNeuron(n);
-		}
-
-		// make bias neuron
-		Neuron bias = new Neuron("B");
-
-		// make connections
-		net.makeConnections(inputLayer, hiddenLayer, net.inputArray[0].length);
-		net.makeConnections(hiddenLayer, outputLayer, net.inputArray[0].length);
-		net.makeBiasConnections(bias, hiddenLayer, net.inputArray[0].length);
-		net.makeBiasConnections(bias, outputLayer, net.inputArray[0].length);
+		NeuronLayer inputLayer = net.inputLayer;
+		NeuronLayer hiddenLayer = net.hiddenLayer;
+		NeuronLayer outputLayer = net.outputLayer;
+		Neuron bias = net.bias;
 
 		System.out.println(net.info());
 		Scanner input = new Scanner(System.in);
@@ -97,68 +135,46 @@ public class NeuronApp {
 			case "l":
 				/*
 				 * Learning process of the network. Learns until the population error is less
-				 * than the error criterion, or the arbitrary epoch limit is reached.
+				 * than the error criterion, the arbitrary epoch limit is reached, or the
+				 * validation error stops improving.
 				 */
+				if (net.validator != null) {
+					net.validator.reset();
+					net.stoppedEarly = false;
+				}
 				while (net.populationError >= net.errorCriterion && net.epochs < 500000) {
-
-					for (int j = 0; j < net.inputArray[0].length; j++) { // for every teaching pattern
-						net.setInput(inputLayer, j); // set the inputs into the input neurons
-						hiddenLayer.calcHiddenOutputs(); // calculate the outputs of the hidden neurons
-						outputLayer.calcOutputOutputs(net.outputArray, j); // calculate the outputs of the output
-																			// neurons
-
-						int k = 0;
-						for (Neuron n : outputLayer.neurons) { // for each of the output neurons
-							n.calcError(net.teacherArray[k][j]); // calculate the error term, given the teaching input
-							for (Connection c : n.inputConnections) {
-								// for each of its input connections, from hidden neurons
-								c.changeWeight(net.learn, net.momentum, j);
-								// collate the weight change to be made at the end of the epoch
-							}
-							k++;
-						}
-						for (Neuron n : hiddenLayer.neurons) { // for each of the hidden neurons
-							n.calcError(); // calculate the error term, accounting for connected output neurons
-							for (Connection c : n.inputConnections) {
-								// for each of its input connections, from input neurons
-								c.changeWeight(net.learn, net.momentum, j);
-								// collate the weight change to be made at the end of the epoch
-							}
-						}
+					net.learnEpoch();
+					if (net.validate()) {
+						break;
 					}
 
-					/*
-					 * At the end of the epoch, make all of the weight changes simultaneously.
-					 */
-					for (Neuron n : outputLayer.neurons) {
-						for (Connection c : n.inputConnections) {
-							c.updateWeight();
-						}
-					}
-					for (Neuron n : hiddenLayer.neurons) {
-						for (Connection c : n.inputConnections) {
-							c.updateWeight();
-						}
-					}
-
-					net.epochs++;
-
 					/*
 					 * Every 100 epochs, prints the population error and epoch number.
 					 */
 					if (net.epochs % 100 == 0) {
 						net.populationError = net.errorCheck(net.teacherArray, net.outputArray, net.output,
 								net.inputArray[0].length);
+						net.telemetry.populationError(net.populationError);
 
 						System.out.println("Population error: " + net.populationError);
 						System.out.println("Number of epochs: " + net.epochs);
+						if (net.validatedEpoch > 0) {
+							System.out.println(
+									"Validation error: " + net.validatedError + " (epoch " + net.validatedEpoch + ")");
+						}
 						System.out.println();
 
 					}
 				}
-				if (net.populationError > net.errorCriterion) {
+				if (net.finishValidation()) {
+					System.out.println("Validation error stopped improving at epoch " + net.epochs
+							+ ".\n Restored weights from epoch " + net.validator.bestEpoch + ", validation error: "
+							+ net.validator.bestError + ", population error: " + net.populationError
+							+ "\n Momentum cleared.");
+				} else if (net.populationError > net.errorCriterion) {
 					System.out.println("Failure to reach error criterion.\n Population error: " + net.populationError);
 				}
+				net.storeWeights();
 				break;
 			case "test":
 			case "t":
@@ -167,21 +183,19 @@ public class NeuronApp {
 				 */
 				for (int j = 0; j < net.inputArray[0].length; j++) { // for every teaching pattern
 					System.out.println("Pattern " + j);
-					net.setInput(inputLayer, j); // set the inputs into the input neurons
+					net.testPattern(j);
 					System.out.println("Input neuron outputs:");
 					for (Neuron n : inputLayer.neurons) {
 						System.out.print(f.format(n.output) + " ");
 					}
 
 					System.out.println();
-					hiddenLayer.calcHiddenOutputs(); // calculate the outputs of the hidden neurons
 					System.out.println("Hidden neuron outputs:");
 					for (Neuron n : hiddenLayer.neurons) {
 						System.out.print(f.format(n.output) + " ");
 					}
 
 					System.out.println();
-					outputLayer.calcOutputOutputs(net.outputArray, j); // calculate the outputs of the output neurons
 					System.out.println("Output neuron outputs:");
 					for (Neuron n : outputLayer.neurons) {
 						System.out.print(f.format(n.output) + " ");
@@ -241,7 +255,12 @@ public class NeuronApp {
 
 	/**
 	 * Method to read the inputs of the param.txt file and set the network
-	 * hyperparameters.
+	 * hyperparameters. The six required values may be followed by optional
+	 * "name value" pairs: "seed" (a long), "init" (uniform, xavier or he),
+	 * "compile" (on or off), "validate" (fraction of patterns to hold out),
+	 * "validatein" and "validateteach" (validation pattern files), "validateevery"
+	 * (epochs between checks), "patience" (checks without improvement before
+	 * stopping) and "jmx" (on or off).
 	 */
 	public void readParams() {
 		File param = new File("param.txt");
@@ -254,6 +273,63 @@ public class NeuronApp {
 			momentum = sc.nextDouble();
 			errorCriterion = sc.nextDouble();
 			populationError = errorCriterion;
+			while (sc.hasNext()) {
+				String name = sc.next().toLowerCase();
+				switch (name) {
+				case "seed":
+					if (sc.hasNextLong()) {
+						seed = sc.nextLong();
+					} else {
+						System.err.println("Unknown seed: " + sc.next() + ", using " + seed + ".");
+					}
+					break;
+				case "init":
+					String value = sc.next();
+					try {
+						scheme = WeightInitializer.Scheme.valueOf(value.toUpperCase());
+					} catch (IllegalArgumentException e2) {
+						System.err.println("Unknown init: " + value + ", using uniform.");
+						scheme = WeightInitializer.Scheme.UNIFORM;
+					}
+					break;
+				case "compile":
+					compile = sc.next().equalsIgnoreCase("on");
+					break;
+				case "validate":
+					validateFraction = sc.nextDouble();
+					break;
+				case "validatein":
+					validateInFile = sc.next();
+					break;
+				case "validateteach":
+					validateTeachFile = sc.next();
+					break;
+				case "validateevery":
+					int every = sc.nextInt();
+					if (every >= 1) {
+						validateEvery = every;
+					} else {
+						System.err.println("validateevery must be at least 1: " + every);
+					}
+					break;
+				case "patience":
+					int checks = sc.nextInt();
+					if (checks >= 0) {
+						patience = checks;
+					} else {
+						System.err.println("patience must not be negative: " + checks);
+					}
+					break;
+				case "jmx":
+					jmx = sc.next().equalsIgnoreCase("on");
+					break;
+				default:
+					System.err.println("Unknown parameter: " + name);
+					if (sc.hasNext()) {
+						sc.next(); // skip its value
+					}
+				}
+			}
 			sc.close();
 			System.out.println("Reading parameters.");
 			System.out.println("input: " + input);
@@ -262,6 +338,16 @@ public class NeuronApp {
 			System.out.println("learn: " + learn);
 			System.out.println("momentum: " + momentum);
 			System.out.println("errorCriterion: " + errorCriterion);
+			System.out.println("seed: " + seed);
+			System.out.println("init: " + scheme.name().toLowerCase());
+			System.out.println("compile: " + (compile ? "on" : "off"));
+			if (validateInFile != null || validateFraction > 0) {
+				System.out.println("validate: "
+						+ (validateInFile != null ? validateInFile + ", " + validateTeachFile : validateFraction));
+				System.out.println("validateevery: " + validateEvery);
+				System.out.println("patience: " + patience);
+			}
+			System.out.println("jmx: " + (jmx ? "on" : "off"));
 			System.out.println();
 		} catch (FileNotFoundException e1) {
 			e1.printStackTrace();
@@ -273,78 +359,453 @@ public class NeuronApp {
 	 */
 	public void readInput() {
 		System.out.println("Reading inputs.");
-		File in = new File("in.txt");
-		try {
-			int count = 0;
-			Scanner lineCounter = new Scanner(in);
-			while (lineCounter.hasNextLine()) {
-				count++;
-				lineCounter.nextLine();
+		inputArray = readPatterns(new File("in.txt"), input);
+	}
+
+	/**
+	 * Method to read the teach.txt file and store the teaching inputs into an
+	 * array. Also creates an empty array of the same size to hold outputs.
+	 */
+	public void readTeacher() {
+		System.out.println("Reading teaching inputs.");
+		teacherArray = readPatterns(new File("teach.txt"), output);
+		outputArray = new double[output][teacherArray[0].length];
+	}
+
+	/**
+	 * Method to read the validation pattern files, or hold out a fraction of the
+	 * teaching patterns for validation. Held out patterns are chosen using the
+	 * seed, and removed from the teaching patterns. Validation is disabled if the
+	 * two files hold different numbers of patterns.
+	 */
+	public void readValidation() {
+		if (validateInFile != null && validateTeachFile != null) {
+			System.out.println("Reading validation inputs.");
+			validateInputArray = readPatterns(new File(validateInFile), input);
+			System.out.println("Reading validation teaching inputs.");
+			validateTeacherArray = readPatterns(new File(validateTeachFile), output);
+			if (validateInputArray != null && validateTeacherArray != null
+					&& validateInputArray[0].length != validateTeacherArray[0].length) {
+				System.err.println("Validation inputs and teaching inputs differ in number of patterns: "
+						+ validateInputArray[0].length + " and " + validateTeacherArray[0].length + ".");
+				validateInputArray = null;
+				validateTeacherArray = null;
 			}
-			lineCounter.close();
+		} else if (validateInFile != null || validateTeachFile != null) {
+			System.err.println("Both validatein and validateteach must be given.");
+		} else if (validateFraction > 0) {
+			holdOut();
+		}
+	}
 
-			inputArray = new double[input][count];
+	/**
+	 * Method to start the validator, if there are validation patterns. The
+	 * network must be built and compiled first, as the validator checks weights
+	 * with its own copy of it.
+	 */
+	public void startValidation() {
+		if (validateInputArray != null && validateTeacherArray != null) {
+			validator = new Validator(validationNetwork(), patience);
+		}
+	}
 
-			Scanner sc = new Scanner(in);
-			for (int i = 0; i < count; i++) {
-				for (int j = 0; j < input; j++) {
-					inputArray[j][i] = sc.nextDouble();
-					System.out.print(inputArray[j][i] + " ");
-				}
-				System.out.println("");
+	/**
+	 * Method to make a copy of the network whose patterns are the validation
+	 * patterns. The copy has its own Neurons and Connections, and its own
+	 * instance of this network's kernel if it has one, so it can run on another
+	 * thread with the same forward pass.
+	 * 
+	 * @return Copy of the network for the validation patterns
+	 */
+	private NeuronApp validationNetwork() {
+		NeuronApp copy = new NeuronApp();
+		copy.input = input;
+		copy.hidden = hidden;
+		copy.output = output;
+		copy.seed = seed;
+		copy.scheme = scheme;
+		copy.inputArray = validateInputArray;
+		copy.teacherArray = validateTeacherArray;
+		copy.outputArray = new double[output][validateInputArray[0].length];
+		copy.buildNetwork();
+		if (kernel != null) {
+			try {
+				copy.kernel = KernelCompiler.instantiate(kernel.getClass(), copy.inputArray, copy.teacherArray,
+						copy.outputArray);
+			} catch (ReflectiveOperationException e1) {
+				e1.printStackTrace();
 			}
-			sc.close();
+		}
+		return copy;
+	}
 
-		} catch (FileNotFoundException e1) {
-			e1.printStackTrace();
+	/**
+	 * Method to move a fraction of the teaching patterns into the validation
+	 * arrays. At least one pattern is held out, and at least one is kept.
+	 */
+	private void holdOut() {
+		int count = inputArray[0].length;
+		if (count < 2) {
+			System.err.println("Too few patterns to hold out for validation.");
+			return;
+		}
+		int held = Math.max(1, Math.min(count - 1, (int) Math.round(count * validateFraction)));
+
+		// shuffle the pattern numbers, and hold out the first of them
+		int[] order = new int[count];
+		for (int j = 0; j < count; j++) {
+			order[j] = j;
 		}
+		SplittableRandom r = new SplittableRandom(seed);
+		for (int j = count - 1; j > 0; j--) {
+			int k = r.nextInt(j + 1);
+			int t = order[j];
+			order[j] = order[k];
+			order[k] = t;
+		}
+		boolean[] validate = new boolean[count];
+		for (int j = 0; j < held; j++) {
+			validate[order[j]] = true;
+		}
+
+		validateInputArray = selectPatterns(inputArray, validate, true);
+		validateTeacherArray = selectPatterns(teacherArray, validate, true);
+		inputArray = selectPatterns(inputArray, validate, false);
+		teacherArray = selectPatterns(teacherArray, validate, false);
+		outputArray = new double[output][count - held];
+		System.out.println("Holding out " + held + " of " + count + " patterns for validation.");
+		System.out.println();
 	}
 
 	/**
-	 * Method to read the teach.txt file and store the teaching inputs into an
-	 * array. Also creates an empty array of the same size to hold outputs.
+	 * Method to copy the chosen patterns of an array into a new array, keeping
+	 * their order.
+	 * 
+	 * @param array    Array of patterns, one column per pattern
+	 * @param selected Which patterns are chosen
+	 * @param value    Copy the patterns where selected has this value
+	 * @return Array of the chosen patterns
 	 */
-	public void readTeacher() {
-		System.out.println("Reading teaching inputs.");
-		File teach = new File("teach.txt");
+	private static double[][] selectPatterns(double[][] array, boolean[] selected, boolean value) {
+		int count = 0;
+		for (int j = 0; j < selected.length; j++) {
+			if (selected[j] == value) {
+				count++;
+			}
+		}
+		double[][] result = new double[array.length][count];
+		for (int i = 0; i < array.length; i++) {
+			for (int j = 0, k = 0; j < selected.length; j++) {
+				if (selected[j] == value) {
+					result[i][k++] = array[i][j];
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Method to read a file of patterns, one pattern per line, into an array with
+	 * one column per pattern.
+	 * 
+	 * @param file  File to read
+	 * @param width Number of values in each pattern
+	 * @return Array of patterns, or null if the file cannot be found
+	 */
+	private double[][] readPatterns(File file, int width) {
 		try {
-			int count = 0; // reads the length of the teaching input before creating arrays
-			Scanner lineCounter = new Scanner(teach);
+			int count = 0; // reads the number of patterns before creating the array
+			Scanner lineCounter = new Scanner(file);
 			while (lineCounter.hasNextLine()) {
 				count++;
 				lineCounter.nextLine();
 			}
 			lineCounter.close();
 
-			teacherArray = new double[output][count];
-			outputArray = new double[output][count];
+			double[][] array = new double[width][count];
 
-			Scanner sc = new Scanner(teach);
+			Scanner sc = new Scanner(file);
 			for (int i = 0; i < count; i++) {
-				for (int j = 0; j < output; j++) {
-					teacherArray[j][i] = sc.nextDouble();
-					System.out.print(teacherArray[j][i] + " ");
+				for (int j = 0; j < width; j++) {
+					array[j][i] = sc.nextDouble();
+					System.out.print(array[j][i] + " ");
 				}
 				System.out.println("");
 			}
 			sc.close();
+			return array;
 
 		} catch (FileNotFoundException e1) {
 			e1.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Method to build the input, hidden and output layers and bias neuron, and
+	 * connect them. Parameters, inputs and teaching inputs must be read first.
+	 */
+	public void buildNetwork() {
+		// build input layer
+		inputLayer = new NeuronLayer();
+		for (int i = 0; i < input; i++) {
+			Neuron n = new Neuron("I");
+			inputLayer.addNeuron(n);
+		}
+
+		// build hidden layer
+		hiddenLayer = new NeuronLayer();
+		for (int i = 0; i < hidden; i++) {
+			Neuron n = new Neuron("H");
+			hiddenLayer.addNeuron(n);
+		}
+
+		// build output layer
+		outputLayer = new NeuronLayer();
+		for (int i = 0; i < output; i++) {
+			Neuron n = new Neuron("O");
+			outputLayer.addNeuron(n);
+		}
+
+		// make bias neuron
+		bias = new Neuron("B");
+
+		// make connections
+		initializer = new WeightInitializer(seed, scheme);
+		makeConnections(inputLayer, hiddenLayer, inputArray[0].length);
+		makeConnections(hiddenLayer, outputLayer, inputArray[0].length);
+		makeBiasConnections(bias, hiddenLayer, inputArray[0].length);
+		makeBiasConnections(bias, outputLayer, inputArray[0].length);
+	}
+
+	/**
+	 * Method to generate a kernel for the built network, if compiling is on. The
+	 * network's weights are loaded into the kernel, and stay there until
+	 * storeWeights is called.
+	 */
+	public void compileNetwork() {
+		if (compile) {
+			kernel = KernelCompiler.compile(this);
+		}
+		System.out.println(kernel != null ? "Using compiled network." : "Using interpreted network.");
+	}
+
+	/**
+	 * Method to copy the weights held by the kernel, if any, back into the
+	 * network's Connections.
+	 */
+	public void storeWeights() {
+		if (kernel != null) {
+			kernel.store(hiddenLayer, outputLayer);
+		}
+	}
+
+	/**
+	 * Method to copy the network's weights into an array, in the same layout as a
+	 * Kernel's weights.
+	 * 
+	 * @param weights Array to copy into
+	 */
+	public void copyWeights(double[] weights) {
+		if (kernel != null) {
+			System.arraycopy(kernel.weights, 0, weights, 0, weights.length);
+		} else {
+			int k = hiddenLayer.copyWeights(weights, 0);
+			outputLayer.copyWeights(weights, k);
+		}
+	}
+
+	/**
+	 * Method to set the network's weights from an array, in the same layout as a
+	 * Kernel's weights.
+	 * 
+	 * @param weights Array to copy from
+	 */
+	public void setWeights(double[] weights) {
+		if (kernel != null) {
+			System.arraycopy(weights, 0, kernel.weights, 0, weights.length);
+		} else {
+			int k = hiddenLayer.setWeights(weights, 0);
+			outputLayer.setWeights(weights, k);
+		}
+	}
+
+	/**
+	 * Method to clear the stored weight changes held by the kernel, if any, or
+	 * the network's Connections, so that no momentum is carried into the next
+	 * epoch.
+	 */
+	public void clearChanges() {
+		if (kernel != null) {
+			kernel.clearChanges();
+		} else {
+			hiddenLayer.clearChanges();
+			outputLayer.clearChanges();
+		}
+	}
+
+	/**
+	 * Method to hand a snapshot of the weights to the validator every
+	 * validateEvery epochs, after collecting the result of the last check. An
+	 * early stop signalled by a check therefore takes effect at the next
+	 * scheduled epoch, whatever the thread timing. Allocates nothing unless it
+	 * has to wait for the validator, so it can be called after every epoch. If a
+	 * check failed, validation is disabled and learning carries on.
+	 * 
+	 * @return True if the last check signalled an early stop.
+	 */
+	public boolean validate() {
+		if (validator == null || epochs % validateEvery != 0) {
+			return false;
+		}
+		double[] snapshot = validator.snapshot();
+		validatedError = validator.lastError;
+		validatedEpoch = validator.lastEpoch;
+		if (snapshot == null) {
+			if (validator.failure != null) {
+				System.err.println("Validation failed: " + validator.failure + "\n Validation disabled.");
+				validator = null;
+				return false;
+			}
+			stoppedEarly = true;
+			return true;
+		}
+		copyWeights(snapshot);
+		validator.submit(epochs);
+		return false;
+	}
+
+	/**
+	 * Method to wait for the validator at the end of learning. If it stopped
+	 * learning early, the best weights are restored and the population error is
+	 * recalculated for them. The stored weight changes belong to a later epoch
+	 * than the restored weights, so they are cleared. The epoch count is not
+	 * rolled back, as it numbers the epochs run for the statistics and events.
+	 * 
+	 * @return True if learning was stopped early.
+	 */
+	public boolean finishValidation() {
+		if (validator == null) {
+			return false;
+		}
+		validator.await();
+		if (!stoppedEarly) {
+			return false;
+		}
+		setWeights(validator.best());
+		clearChanges();
+		populationError = patternError();
+		telemetry.populationError(populationError);
+		return true;
+	}
+
+	/**
+	 * Method to propagate every pattern forward with the current weights and
+	 * check the population error.
+	 * 
+	 * @return Population error
+	 */
+	public double patternError() {
+		for (int j = 0; j < inputArray[0].length; j++) {
+			forwardPattern(j);
+		}
+		return errorCheck(teacherArray, outputArray, output, inputArray[0].length);
+	}
+
+	/**
+	 * Method to register the JMX statistics for the calling thread, if "jmx on" is
+	 * given in param.txt. Should be called from the thread that will learn.
+	 */
+	public void startStats() {
+		if (jmx) {
+			telemetry.stats = new TrainingStats(learn);
+			telemetry.stats.register();
+		}
+	}
+
+	/**
+	 * Method to run one epoch of learning: every teaching pattern is propagated
+	 * forward and its error propagated back, then all of the weight changes are
+	 * made simultaneously. Once warmed up, an epoch allocates nothing, so no
+	 * enhanced-for loops, boxing or string building belong in here.
+	 */
+	public void learnEpoch() {
+		telemetry.beginEpoch(epochs + 1, kernel != null);
+		if (kernel != null) {
+			kernel.learnEpoch(telemetry, epochs + 1);
+		} else {
+			for (int j = 0; j < inputArray[0].length; j++) { // for every teaching pattern
+				setInput(inputLayer, j); // set the inputs into the input neurons
+				telemetry.mark();
+				hiddenLayer.calcHiddenOutputs(); // calculate the outputs of the hidden neurons
+				telemetry.phase(Telemetry.FORWARD_HIDDEN);
+				outputLayer.calcOutputOutputs(outputArray, j); // calculate the outputs of the output neurons
+				telemetry.phase(Telemetry.FORWARD_OUTPUT);
+				outputLayer.calcOutputErrors(teacherArray, j); // calculate the error terms, given the teaching input
+				outputLayer.changeWeights(learn, momentum, j); // collate the weight changes from hidden neurons
+				telemetry.phase(Telemetry.BACKWARD_OUTPUT);
+				hiddenLayer.calcHiddenErrors(); // calculate the error terms, accounting for output neurons
+				hiddenLayer.changeWeights(learn, momentum, j); // collate the weight changes from input neurons
+				telemetry.phase(Telemetry.BACKWARD_HIDDEN);
+			}
+
+			/*
+			 * At the end of the epoch, make all of the weight changes simultaneously.
+			 */
+			telemetry.beginUpdate(epochs + 1);
+			outputLayer.updateWeights();
+			hiddenLayer.updateWeights();
+			telemetry.endUpdate();
+		}
+
+		epochs++;
+		telemetry.endEpoch(epochs, inputArray[0].length);
+	}
+
+	/**
+	 * Method to test a single pattern, recorded by telemetry as a tested pattern.
+	 * Like learnEpoch, this allocates nothing.
+	 * 
+	 * @param j Pattern number
+	 */
+	public void testPattern(int j) {
+		telemetry.beginTest(j);
+		forwardPattern(j);
+		telemetry.endTest();
+	}
+
+	/**
+	 * Method to propagate a single pattern forward through the network, leaving
+	 * the activations in the neurons and the outputs in the output array. Not
+	 * recorded by telemetry, so it can be used for the network's own checks.
+	 * 
+	 * @param j Pattern number
+	 */
+	public void forwardPattern(int j) {
+		setInput(inputLayer, j);
+		if (kernel != null) {
+			kernel.testPattern(j);
+			kernel.storeOutputs(hiddenLayer, outputLayer);
+		} else {
+			hiddenLayer.calcHiddenOutputs();
+			outputLayer.calcOutputOutputs(outputArray, j);
 		}
 	}
 
 	/**
-	 * Method to make connections between all of the neurons in two layers.
+	 * Method to make connections between all of the neurons in two layers. The
+	 * weights for the whole layer pair are drawn from the initializer in one go.
 	 * 
 	 * @param a        Source layer
 	 * @param b        Target layer
 	 * @param patterns Number of input patterns to keep track of
 	 */
 	public void makeConnections(NeuronLayer a, NeuronLayer b, int patterns) {
+		int targets = b.neurons.size();
+		double[] weights = initializer.weights(a.neurons.size(), targets);
 		for (int i = 0; i < a.neurons.size(); i++) {
-			for (int j = 0; j < b.neurons.size(); j++) {
-				Connection c = new Connection(a.neurons.get(i), b.neurons.get(j), patterns);
+			for (int j = 0; j < targets; j++) {
+				Connection c = new Connection(a.neurons.get(i), b.neurons.get(j), weights[i * targets + j], patterns);
 				a.neurons.get(i).outputConnections.add(c);
 				b.neurons.get(j).inputConnections.add(c);
 			}
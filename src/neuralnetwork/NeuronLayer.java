@@ -58,8 +58,8 @@ public class NeuronLayer {
 	 * outputs do not have to be readily accessed later.
 	 */
 	public void calcHiddenOutputs() {
-		for (Neuron n : this.neurons) {
-			n.calcOutput();
+		for (int i = 0; i < neurons.size(); i++) {
+			neurons.get(i).calcOutput();
 		}
 	}
 
@@ -70,10 +70,104 @@ public class NeuronLayer {
 	 * @param j Row of input patterns to place outputs into.
 	 */
 	public void calcOutputOutputs(double[][] outputArray, int j) {
-		int i = 0;
-		for (Neuron n : this.neurons) {
-			outputArray[i][j] = n.calcOutput();
-			i++;
+		for (int i = 0; i < neurons.size(); i++) {
+			outputArray[i][j] = neurons.get(i).calcOutput();
+		}
+	}
+
+	/**
+	 * Iterate through output neurons and calculate their error terms against the
+	 * designated row of teaching inputs.
+	 * 
+	 * @param teach Array of teaching inputs.
+	 * @param j     Row of teaching inputs to compare to.
+	 */
+	public void calcOutputErrors(double[][] teach, int j) {
+		for (int i = 0; i < neurons.size(); i++) {
+			neurons.get(i).calcError(teach[i][j]);
+		}
+	}
+
+	/**
+	 * Iterate through hidden neurons and calculate their error terms, accounting
+	 * for connected output neurons. Output error terms must already be calculated.
+	 */
+	public void calcHiddenErrors() {
+		for (int i = 0; i < neurons.size(); i++) {
+			neurons.get(i).calcError();
+		}
+	}
+
+	/**
+	 * Iterate through neurons and collate the weight changes of their incoming
+	 * connections for the current pattern. Error terms must already be calculated.
+	 * 
+	 * @param constant Network learning constant.
+	 * @param momentum Network momentum constant.
+	 * @param j        Pattern number.
+	 */
+	public void changeWeights(double constant, double momentum, int j) {
+		for (int i = 0; i < neurons.size(); i++) {
+			neurons.get(i).changeInputWeights(constant, momentum, j);
+		}
+	}
+
+	/**
+	 * Iterate through neurons and make the collated weight changes of their
+	 * incoming connections at the end of an epoch.
+	 */
+	public void updateWeights() {
+		for (int i = 0; i < neurons.size(); i++) {
+			neurons.get(i).updateInputWeights();
+		}
+	}
+
+	/**
+	 * Iterate through neurons and clear the stored weight changes of their
+	 * incoming connections.
+	 */
+	public void clearChanges() {
+		for (int i = 0; i < neurons.size(); i++) {
+			List<Connection> connections = neurons.get(i).inputConnections;
+			for (int c = 0; c < connections.size(); c++) {
+				connections.get(c).clearChanges();
+			}
+		}
+	}
+
+	/**
+	 * Copies the weights of the neurons' incoming connections into an array, in
+	 * the same layout as a Kernel's weights.
+	 * 
+	 * @param weights Array to copy into.
+	 * @param k       Index of the layer's first weight.
+	 * @return Index after the layer's last weight.
+	 */
+	public int copyWeights(double[] weights, int k) {
+		for (int i = 0; i < neurons.size(); i++) {
+			List<Connection> connections = neurons.get(i).inputConnections;
+			for (int c = 0; c < connections.size(); c++, k++) {
+				weights[k] = connections.get(c).weight;
+			}
+		}
+		return k;
+	}
+
+	/**
+	 * Sets the weights of the neurons' incoming connections from an array, in the
+	 * same layout as a Kernel's weights.
+	 * 
+	 * @param weights Array to copy from.
+	 * @param k       Index of the layer's first weight.
+	 * @return Index after the layer's last weight.
+	 */
+	public int setWeights(double[] weights, int k) {
+		for (int i = 0; i < neurons.size(); i++) {
+			List<Connection> connections = neurons.get(i).inputConnections;
+			for (int c = 0; c < connections.size(); c++, k++) {
+				connections.get(c).setWeight(weights[k]);
+			}
 		}
+		return k;
 	}
 }
\ No newline at end of file
@@ -0,0 +1,22 @@
+package neuralnetwork;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning the forward propagation of a single pattern when testing.
+ * 
+ * @author Nick
+ *
+ */
+@Name("neuralnetwork.PatternTest")
+@Label("Pattern Test")
+@Category("Neural Network")
+@Description("Forward propagation of a single pattern")
+public class PatternTestEvent extends jdk.jfr.Event {
+
+	@Label("Pattern")
+	public int pattern;
+}
@@ -0,0 +1,177 @@
+package neuralnetwork;
+
+/**
+ * Class Telemetry. Records JFR events for learning and testing, and updates the
+ * JMX statistics if they are registered. Each method first checks whether its
+ * event is enabled in a running recording, so with no recording and no
+ * statistics the calls cost a field read and a branch, and allocate nothing.
+ * 
+ * @author Nick
+ *
+ */
+public class Telemetry {
+
+	/*
+	 * Phases timed for each pattern, in the order they run.
+	 */
+	public static final int FORWARD_HIDDEN = 0;
+	public static final int FORWARD_OUTPUT = 1;
+	public static final int BACKWARD_OUTPUT = 2;
+	public static final int BACKWARD_HIDDEN = 3;
+	private static final String[] LAYERS = { "H", "O", "O", "H" };
+	private static final String[] PHASES = { "forward", "forward", "backward", "backward" };
+
+	/*
+	 * Events never committed, used to check whether each event type is enabled.
+	 */
+	private static final EpochEvent EPOCH = new EpochEvent();
+	private static final LayerPhaseEvent PHASE = new LayerPhaseEvent();
+	private static final WeightUpdateEvent UPDATE = new WeightUpdateEvent();
+	private static final PatternTestEvent TEST = new PatternTestEvent();
+
+	/*
+	 * JMX statistics, or null if not registered.
+	 */
+	public TrainingStats stats;
+
+	/*
+	 * Events in progress, and phase times for the current epoch.
+	 */
+	private EpochEvent epochEvent;
+	private WeightUpdateEvent updateEvent;
+	private PatternTestEvent testEvent;
+	private boolean timing;
+	private long mark;
+	private final long[] phaseTime = new long[PHASES.length];
+
+	/**
+	 * Called before the first pattern of an epoch.
+	 * 
+	 * @param epoch    Number of the epoch.
+	 * @param compiled Whether the epoch runs in a generated kernel.
+	 */
+	public void beginEpoch(int epoch, boolean compiled) {
+		if (EPOCH.isEnabled()) {
+			epochEvent = new EpochEvent();
+			epochEvent.epoch = epoch;
+			epochEvent.compiled = compiled;
+			epochEvent.begin();
+		}
+		timing = PHASE.isEnabled();
+	}
+
+	/**
+	 * Called before the first phase of a pattern.
+	 */
+	public void mark() {
+		if (timing) {
+			mark = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Called at the end of each phase of a pattern, adding the time since the
+	 * last phase or mark to the phase's time.
+	 * 
+	 * @param phase Phase just finished.
+	 */
+	public void phase(int phase) {
+		if (timing) {
+			long now = System.nanoTime();
+			phaseTime[phase] += now - mark;
+			mark = now;
+		}
+	}
+
+	/**
+	 * Called before the weight update at the end of an epoch.
+	 * 
+	 * @param epoch Number of the epoch.
+	 */
+	public void beginUpdate(int epoch) {
+		if (UPDATE.isEnabled()) {
+			updateEvent = new WeightUpdateEvent();
+			updateEvent.epoch = epoch;
+			updateEvent.begin();
+		}
+	}
+
+	/**
+	 * Called after the weight update at the end of an epoch.
+	 */
+	public void endUpdate() {
+		if (updateEvent != null) {
+			updateEvent.commit();
+			updateEvent = null;
+		}
+	}
+
+	/**
+	 * Called after the weight update of an epoch. Commits the epoch's events and
+	 * counts it in the statistics.
+	 * 
+	 * @param epoch    Number of the epoch.
+	 * @param patterns Number of patterns learned in the epoch.
+	 */
+	public void endEpoch(int epoch, int patterns) {
+		if (timing) {
+			for (int p = 0; p < phaseTime.length; p++) {
+				LayerPhaseEvent e = new LayerPhaseEvent();
+				e.epoch = epoch;
+				e.layer = LAYERS[p];
+				e.phase = PHASES[p];
+				e.phaseTime = phaseTime[p];
+				e.patterns = patterns;
+				e.commit();
+				phaseTime[p] = 0;
+			}
+			timing = false;
+		}
+		if (epochEvent != null) {
+			epochEvent.patterns = patterns;
+			epochEvent.commit();
+			epochEvent = null;
+		}
+		if (stats != null) {
+			stats.epochs = epoch;
+			stats.patterns += patterns;
+		}
+	}
+
+	/**
+	 * Called before a pattern is tested.
+	 * 
+	 * @param pattern Pattern number.
+	 */
+	public void beginTest(int pattern) {
+		if (TEST.isEnabled()) {
+			testEvent = new PatternTestEvent();
+			testEvent.pattern = pattern;
+			testEvent.begin();
+		}
+	}
+
+	/**
+	 * Called after a pattern is tested.
+	 */
+	public void endTest() {
+		if (testEvent != null) {
+			testEvent.commit();
+			testEvent = null;
+		}
+		if (stats != null) {
+			stats.patternsTested++;
+		}
+	}
+
+	/**
+	 * Called when the population error is recalculated.
+	 * 
+	 * @param populationError New population error.
+	 */
+	public void populationError(double populationError) {
+		if (stats != null) {
+			stats.populationError = populationError;
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package neuralnetwork;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Class TrainingStats. Counters updated by the learning thread, and rates
+ * sampled from them when read over JMX. The learning thread only writes
+ * volatile fields, so updating the counters allocates nothing.
+ * 
+ * @author Nick
+ *
+ */
+public class TrainingStats implements TrainingStatsMBean {
+
+	/*
+	 * Counters and values written by the learning thread.
+	 */
+	volatile long epochs;
+	volatile long patterns;
+	volatile long patternsTested;
+	volatile double populationError = Double.NaN;
+	volatile double learningRate;
+
+	/*
+	 * Thread doing the learning, for allocation measurements.
+	 */
+	private final long threadId;
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	/*
+	 * Values at the last sample, and the rates calculated from them.
+	 */
+	private long sampleTime;
+	private long sampleEpochs;
+	private long samplePatterns;
+	private long sampleAllocated;
+	private double epochsPerSecond;
+	private double patternsPerSecond;
+	private double allocationRate;
+
+	/**
+	 * Constructor for the statistics of the calling thread.
+	 * 
+	 * @param learningRate Network learning constant.
+	 */
+	public TrainingStats(double learningRate) {
+		this.learningRate = learningRate;
+		this.threadId = Thread.currentThread().getId();
+		this.sampleTime = System.nanoTime();
+		this.sampleAllocated = allocated();
+	}
+
+	/**
+	 * Registers these statistics with the platform MBean server.
+	 */
+	public void register() {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+					new ObjectName("neuralnetwork:type=TrainingStats"));
+		} catch (JMException e1) {
+			e1.printStackTrace();
+		}
+	}
+
+	/**
+	 * Reads the number of bytes allocated by the learning thread.
+	 * 
+	 * @return Bytes allocated, or -1 if not measured.
+	 */
+	private long allocated() {
+		if (threads instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(threadId);
+		}
+		return -1;
+	}
+
+	/**
+	 * Recalculates the rates if a second has passed since the last sample.
+	 */
+	private synchronized void sample() {
+		long now = System.nanoTime();
+		double seconds = (now - sampleTime) / 1e9;
+		if (seconds < 1) {
+			return;
+		}
+		long e = epochs;
+		long p = patterns + patternsTested;
+		long a = allocated();
+		epochsPerSecond = (e - sampleEpochs) / seconds;
+		patternsPerSecond = (p - samplePatterns) / seconds;
+		allocationRate = a < 0 ? -1 : (a - sampleAllocated) / seconds;
+		sampleTime = now;
+		sampleEpochs = e;
+		samplePatterns = p;
+		sampleAllocated = a;
+	}
+
+	@Override
+	public long getEpochs() {
+		return epochs;
+	}
+
+	@Override
+	public long getPatternsTested() {
+		return patternsTested;
+	}
+
+	@Override
+	public synchronized double getEpochsPerSecond() {
+		sample();
+		return epochsPerSecond;
+	}
+
+	@Override
+	public synchronized double getPatternsPerSecond() {
+		sample();
+		return patternsPerSecond;
+	}
+
+	@Override
+	public double getPopulationError() {
+		return populationError;
+	}
+
+	@Override
+	public double getLearningRate() {
+		return learningRate;
+	}
+
+	@Override
+	public synchronized double getAllocationRate() {
+		sample();
+		return allocationRate;
+	}
+}
@@ -0,0 +1,48 @@
+package neuralnetwork;
+
+/**
+ * Management interface for live learning and testing statistics, registered as
+ * "neuralnetwork:type=TrainingStats". Rates are averaged since they were last
+ * sampled, at most once a second.
+ * 
+ * @author Nick
+ *
+ */
+public interface TrainingStatsMBean {
+
+	/**
+	 * @return Number of epochs learned.
+	 */
+	long getEpochs();
+
+	/**
+	 * @return Number of patterns tested.
+	 */
+	long getPatternsTested();
+
+	/**
+	 * @return Epochs learned per second.
+	 */
+	double getEpochsPerSecond();
+
+	/**
+	 * @return Patterns learned and tested per second.
+	 */
+	double getPatternsPerSecond();
+
+	/**
+	 * @return Most recently calculated population error.
+	 */
+	double getPopulationError();
+
+	/**
+	 * @return Network learning constant.
+	 */
+	double getLearningRate();
+
+	/**
+	 * @return Bytes allocated per second by the learning thread, or -1 if the
+	 *         JVM does not measure thread allocation.
+	 */
+	double getAllocationRate();
+}
@@ -0,0 +1,178 @@
+package neuralnetwork;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Class Validator. Measures the population error of the network on a set of
+ * validation patterns held out from learning. The learning thread hands over a
+ * snapshot of the weights every so many epochs, and the error is calculated on
+ * a background thread while learning carries on. Before handing over the next
+ * snapshot, the learning thread waits for the last check, which has almost
+ * always finished by then. Every scheduled check therefore runs, and the
+ * learning thread sees each check's result at the next scheduled epoch, so
+ * runs with the same seed stop at the same epoch. Tracks the best weights
+ * seen, and signals an early stop once the error has not improved for a number
+ * of checks.
+ *
+ * The error is calculated by a private copy of the network, built for the
+ * validation patterns, so validation uses the same forward pass as learning
+ * and testing. Weights are in the same layout as a Kernel's weights.
+ *
+ * @author Nick
+ *
+ */
+public class Validator implements Runnable {
+
+	/*
+	 * Copy of the network whose patterns are the validation patterns. Only used
+	 * by the background thread.
+	 */
+	private final NeuronApp network;
+
+	/*
+	 * Number of checks without improvement before stopping. Zero never stops.
+	 */
+	private final int patience;
+
+	/*
+	 * Weights handed over by the learning thread, and best weights seen so far.
+	 */
+	private final double[] snapshot;
+	private final double[] best;
+
+	/*
+	 * idle has a permit while the snapshot may be written by the learning
+	 * thread; ready has one while a snapshot is waiting to be checked.
+	 */
+	private final Semaphore idle = new Semaphore(1);
+	private final Semaphore ready = new Semaphore(0);
+
+	/*
+	 * Results of the checks so far.
+	 */
+	private int snapshotEpoch;
+	private int checksSinceBest;
+	public volatile double lastError = Double.NaN;
+	public volatile int lastEpoch;
+	public volatile double bestError = Double.POSITIVE_INFINITY;
+	public volatile int bestEpoch;
+	public volatile boolean stopped;
+
+	/*
+	 * Exception thrown by a check, if any. A failed check also sets stopped, so
+	 * the learning thread is never left waiting.
+	 */
+	public volatile RuntimeException failure;
+
+	/**
+	 * Constructor for a copy of the network built for the validation patterns.
+	 * Starts the background thread.
+	 *
+	 * @param network  Network whose patterns are the validation patterns.
+	 * @param patience Checks without improvement before stopping, or zero.
+	 */
+	public Validator(NeuronApp network, int patience) {
+		this.network = network;
+		this.patience = patience;
+		int weights = network.hidden * (network.input + 1) + network.output * (network.hidden + 1);
+		this.snapshot = new double[weights];
+		this.best = new double[weights];
+		Thread t = new Thread(this, "validator");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/**
+	 * Waits for the last check to finish, then returns the snapshot array. The
+	 * caller must fill it and call submit. The results of the last check can be
+	 * read once this returns.
+	 *
+	 * @return Array to copy the weights into, or null if the last check signalled
+	 *         an early stop or failed.
+	 */
+	public double[] snapshot() {
+		if (!idle.tryAcquire()) {
+			idle.acquireUninterruptibly();
+		}
+		if (stopped) {
+			idle.release();
+			return null;
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Hands a filled snapshot over to the background thread.
+	 *
+	 * @param epoch Epoch the weights were taken at.
+	 */
+	public void submit(int epoch) {
+		snapshotEpoch = epoch;
+		ready.release();
+	}
+
+	/**
+	 * Waits for any running check to finish.
+	 */
+	public void await() {
+		idle.acquireUninterruptibly();
+		idle.release();
+	}
+
+	/**
+	 * Clears the early stop, so that learning can be continued. The best error
+	 * and weights are kept.
+	 */
+	public void reset() {
+		await();
+		checksSinceBest = 0;
+		stopped = false;
+	}
+
+	/**
+	 * Returns the best weights seen so far. Only valid after await.
+	 *
+	 * @return Best weights.
+	 */
+	public double[] best() {
+		return best;
+	}
+
+	/**
+	 * Background thread. Checks each snapshot as it is handed over. The snapshot
+	 * is released even if the check fails.
+	 */
+	@Override
+	public void run() {
+		while (true) {
+			ready.acquireUninterruptibly();
+			try {
+				check();
+			} catch (RuntimeException e) {
+				failure = e;
+				stopped = true;
+			} finally {
+				idle.release();
+			}
+		}
+	}
+
+	/**
+	 * Calculates the population error of the snapshot, and keeps it if it is the
+	 * best so far.
+	 */
+	private void check() {
+		network.setWeights(snapshot);
+		double error = network.patternError();
+		lastError = error;
+		lastEpoch = snapshotEpoch;
+		if (error < bestError) {
+			System.arraycopy(snapshot, 0, best, 0, snapshot.length);
+			bestError = error;
+			bestEpoch = snapshotEpoch;
+			checksSinceBest = 0;
+		} else if (patience > 0 && ++checksSinceBest >= patience) {
+			stopped = true;
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package neuralnetwork;
+
+import java.util.SplittableRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Class WeightInitializer. Draws the initial Connection weights for the network
+ * from a single seeded generator, filling a whole array of weights at a time.
+ * Arrays are filled in fixed-size chunks, each with its own generator split from
+ * the seed in order, so large layers can be filled in parallel and still give
+ * the same weights regardless of the number of threads.
+ *
+ * @author Nick
+ *
+ */
+public class WeightInitializer {
+
+	/**
+	 * Weight initialisation schemes. UNIFORM draws from [-0.3, 0.3], XAVIER and HE
+	 * draw from a uniform range scaled by the fan-in (and fan-out) of the layer.
+	 */
+	public enum Scheme {
+		UNIFORM, XAVIER, HE
+	}
+
+	/*
+	 * Number of weights drawn from each split generator, and the array length
+	 * from which chunks are filled in parallel.
+	 */
+	static final int CHUNK = 1 << 14;
+	static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	/*
+	 * Seed and scheme this initializer was created with.
+	 */
+	public final long seed;
+	public final Scheme scheme;
+
+	/*
+	 * Generator that each chunk's generator is split from.
+	 */
+	private final SplittableRandom root;
+
+	/**
+	 * Constructor for a given seed and scheme.
+	 *
+	 * @param seed   Seed for all weights drawn by this initializer.
+	 * @param scheme Weight initialisation scheme.
+	 */
+	public WeightInitializer(long seed, Scheme scheme) {
+		this.seed = seed;
+		this.scheme = scheme;
+		this.root = new SplittableRandom(seed);
+	}
+
+	/**
+	 * Calculates the bound of the uniform range weights are drawn from.
+	 *
+	 * @param fanIn  Number of source neurons.
+	 * @param fanOut Number of target neurons.
+	 * @return Weights are drawn from [-limit, limit].
+	 */
+	public double limit(int fanIn, int fanOut) {
+		switch (scheme) {
+		case XAVIER:
+			return Math.sqrt(6.0 / (fanIn + fanOut));
+		case HE:
+			return Math.sqrt(6.0 / fanIn);
+		default:
+			return .3;
+		}
+	}
+
+	/**
+	 * Draws the weights for a fully connected pair of layers.
+	 *
+	 * @param fanIn  Number of source neurons.
+	 * @param fanOut Number of target neurons.
+	 * @return Array of fanIn * fanOut weights, indexed [source * fanOut + target].
+	 */
+	public double[] weights(int fanIn, int fanOut) {
+		double[] weights = new double[fanIn * fanOut];
+		fill(weights, fanIn, fanOut);
+		return weights;
+	}
+
+	/**
+	 * Fills an array with non-zero weights. Each chunk of the array gets its own
+	 * generator, split from the seed in chunk order before any are filled.
+	 *
+	 * @param weights Array to fill.
+	 * @param fanIn   Number of source neurons.
+	 * @param fanOut  Number of target neurons.
+	 */
+	public void fill(double[] weights, int fanIn, int fanOut) {
+		double limit = limit(fanIn, fanOut);
+		int chunks = (weights.length + CHUNK - 1) / CHUNK;
+		SplittableRandom[] generators = new SplittableRandom[chunks];
+		for (int c = 0; c < chunks; c++) {
+			generators[c] = root.split();
+		}
+		IntStream range = IntStream.range(0, chunks);
+		if (weights.length >= PARALLEL_THRESHOLD) {
+			range = range.parallel();
+		}
+		range.forEach(c -> fillChunk(weights, c * CHUNK, Math.min(weights.length, (c + 1) * CHUNK), generators[c],
+				limit));
+	}
+
+	/**
+	 * Fills one chunk of an array with weights from its generator.
+	 *
+	 * @param weights Array to fill.
+	 * @param from    First index of the chunk.
+	 * @param to      Index after the last of the chunk.
+	 * @param r       Generator for this chunk.
+	 * @param limit   Bound of the uniform range.
+	 */
+	private static void fillChunk(double[] weights, int from, int to, SplittableRandom r, double limit) {
+		for (int i = from; i < to; i++) {
+			double w = 0;
+			while (w == 0) {
+				w = r.nextDouble(-limit, limit);
+			}
+			weights[i] = w;
+		}
+	}
+}
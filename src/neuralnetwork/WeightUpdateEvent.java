@@ -0,0 +1,22 @@
+package neuralnetwork;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning the weight update at the end of an epoch.
+ * 
+ * @author Nick
+ *
+ */
+@Name("neuralnetwork.WeightUpdate")
+@Label("Weight Update")
+@Category("Neural Network")
+@Description("Collated weight changes made at the end of an epoch")
+public class WeightUpdateEvent extends jdk.jfr.Event {
+
+	@Label("Epoch")
+	public int epoch;
+}
@@ -0,0 +1,121 @@
+package neuralnetwork;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+
+/**
+ * Regression test for the allocation-free learning and testing loops. Builds a
+ * small network in memory, warms up learnEpoch and testPattern, then checks
+ * that the learning thread allocates no bytes over a number of further epochs.
+ * Runs the interpreted network and the compiled kernel. Exits with a non-zero
+ * status on failure.
+ *
+ * Run with: javac -d out src/neuralnetwork/*.java test/neuralnetwork/*.java
+ * and java -cp out neuralnetwork.AllocationTest
+ *
+ * @author Nick
+ *
+ */
+public class AllocationTest {
+
+	/*
+	 * Epochs to warm up with, and epochs to measure.
+	 */
+	static final int WARMUP = 20000;
+	static final int EPOCHS = 10000;
+
+	static final com.sun.management.ThreadMXBean THREADS = (com.sun.management.ThreadMXBean) ManagementFactory
+			.getThreadMXBean();
+
+	/**
+	 * Entry point of the test.
+	 *
+	 * @param args The command line arguments are not used.
+	 */
+	public static void main(String[] args) {
+		if (!THREADS.isThreadAllocatedMemorySupported()) {
+			System.out.println("Thread allocation measurement not supported; skipped.");
+			return;
+		}
+		THREADS.setThreadAllocatedMemoryEnabled(true);
+		boolean passed = check(false) & check(true);
+		System.out.println(passed ? "AllocationTest passed." : "AllocationTest FAILED.");
+		if (!passed) {
+			System.exit(1);
+		}
+	}
+
+	/**
+	 * Measures the bytes allocated over EPOCHS epochs of a warmed-up network.
+	 *
+	 * @param compile Whether to run the compiled kernel.
+	 * @return True if no bytes were allocated.
+	 */
+	static boolean check(boolean compile) {
+		NeuronApp net = network(compile);
+		String name = compile ? "compiled" : "interpreted";
+		if (compile && net.kernel == null) {
+			System.out.println(name + ": no kernel could be generated");
+			return false;
+		}
+		int patterns = net.inputArray[0].length;
+		for (int i = 0; i < WARMUP; i++) {
+			net.learnEpoch();
+			net.testPattern(i % patterns);
+		}
+
+		long thread = Thread.currentThread().getId();
+		long overhead = Long.MAX_VALUE;
+		for (int i = 0; i < 10; i++) {
+			long before = THREADS.getThreadAllocatedBytes(thread);
+			overhead = Math.min(overhead, THREADS.getThreadAllocatedBytes(thread) - before);
+		}
+
+		long before = THREADS.getThreadAllocatedBytes(thread);
+		for (int i = 0; i < EPOCHS; i++) {
+			net.learnEpoch();
+			net.testPattern(i % patterns);
+		}
+		long allocated = THREADS.getThreadAllocatedBytes(thread) - before - overhead;
+
+		System.out.println(name + ": " + allocated + " bytes over " + EPOCHS + " epochs");
+		return allocated <= 0;
+	}
+
+	/**
+	 * Builds a seeded network with random patterns, without reading any files.
+	 *
+	 * @param compile Whether to compile the network.
+	 * @return Built network, with statistics enabled but not registered.
+	 */
+	static NeuronApp network(boolean compile) {
+		NeuronApp net = new NeuronApp();
+		net.input = 8;
+		net.hidden = 12;
+		net.output = 3;
+		net.learn = .1;
+		net.momentum = .9;
+		net.errorCriterion = 0;
+		net.seed = 42;
+		net.compile = compile;
+
+		int patterns = 20;
+		SplittableRandom r = new SplittableRandom(net.seed);
+		net.inputArray = new double[net.input][patterns];
+		net.teacherArray = new double[net.output][patterns];
+		net.outputArray = new double[net.output][patterns];
+		for (int j = 0; j < patterns; j++) {
+			for (int i = 0; i < net.input; i++) {
+				net.inputArray[i][j] = r.nextInt(2);
+			}
+			for (int o = 0; o < net.output; o++) {
+				net.teacherArray[o][j] = r.nextInt(2);
+			}
+		}
+
+		net.buildNetwork();
+		net.compileNetwork();
+		net.telemetry.stats = new TrainingStats(net.learn);
+		return net;
+	}
+}